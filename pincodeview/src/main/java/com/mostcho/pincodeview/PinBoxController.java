@@ -0,0 +1,144 @@
+package com.mostcho.pincodeview;
+
+/**
+ * Maps the events of the pin boxes to PinCodeEntry operations and renders the PinCodeEntry state
+ * back into the pin boxes. The boxes are accessed only through PinBoxes, so the same mapping runs
+ * against the EditTexts of the PinCodeView and headless.
+ */
+class PinBoxController {
+    // ---------------------------------------------------------------------------------------------
+    // Fields
+    // ---------------------------------------------------------------------------------------------
+    private final PinCodeEntry mEntry;
+    private final PinBoxes mPinBoxes;
+
+    private boolean mIsSyncingPinBoxes = false;
+
+    // ---------------------------------------------------------------------------------------------
+    // Constructors
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Default constructor.
+     *
+     * @param entry    Entry state machine.
+     * @param pinBoxes Pin boxes in which the entry state is rendered.
+     */
+    PinBoxController(PinCodeEntry entry, PinBoxes pinBoxes) {
+        mEntry = entry;
+        mPinBoxes = pinBoxes;
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Package methods
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Text of a pin box changed, called from TextWatcher.onTextChanged(). Removed text clears the
+     * box and all boxes after it. Inserted text is appended to the entered digits, no matter which
+     * box it was typed or pasted into, so the boxes are always filled in order.
+     *
+     * @param box    Index of the pin box.
+     * @param s      New text of the pin box.
+     * @param start  Start of the changed text.
+     * @param before Length of the removed text.
+     * @param count  Length of the inserted text.
+     */
+    void onTextChanged(int box, CharSequence s, int start, int before, int count) {
+        if (mIsSyncingPinBoxes) {
+            return;
+        }
+        if (before > 0) {
+            mEntry.deleteDigits(box);
+        }
+        if (count > 0) {
+            mEntry.enterDigits(s.subSequence(start, start + count));
+        }
+    }
+
+    /**
+     * Text change of a pin box is finished, called from TextWatcher.afterTextChanged().
+     */
+    void afterTextChanged() {
+        syncPinBoxes();
+    }
+
+    /**
+     * Backspace pressed in a pin box. In a filled box it removes the digit of the box, in an empty
+     * box it removes the last entered digit.
+     *
+     * @param box Index of the pin box.
+     */
+    void onDelKey(int box) {
+        if (!mEntry.deleteDigits(box)) {
+            mEntry.deleteDigit();
+        }
+        syncPinBoxes();
+    }
+
+    /**
+     * Clear the entered digits and the pin boxes.
+     */
+    void reset() {
+        mEntry.reset();
+        syncPinBoxes();
+    }
+
+    /**
+     * Render the PinCodeEntry state into the pin boxes. Box i always shows the i-th entered digit
+     * and only the box returned by PinCodeEntry.getFocusedBox() is focusable. The new box gets the
+     * focus before the other boxes lose it, otherwise the focus would be cleared for a moment.
+     */
+    void syncPinBoxes() {
+        if (mIsSyncingPinBoxes) {
+            return;
+        }
+        mIsSyncingPinBoxes = true;
+        try {
+            int length = mEntry.getLength();
+            for (int i = 0; i < PinCodeEntry.PIN_CODE_LENGTH; i++) {
+                boolean isFilled = i < length;
+                CharSequence text = mPinBoxes.getText(i);
+                if (isFilled) {
+                    char digit = mEntry.getDigit(i);
+                    if (text.length() != 1 || text.charAt(0) != digit) {
+                        mPinBoxes.setText(i, String.valueOf(digit));
+                    }
+                } else if (text.length() != 0) {
+                    mPinBoxes.setText(i, "");
+                }
+                mPinBoxes.setFilled(i, isFilled);
+            }
+
+            int focusedBox = mEntry.getFocusedBox();
+            mPinBoxes.setFocusable(focusedBox, true);
+            mPinBoxes.requestFocus(focusedBox);
+            for (int i = 0; i < PinCodeEntry.PIN_CODE_LENGTH; i++) {
+                if (i != focusedBox) {
+                    mPinBoxes.setFocusable(i, false);
+                }
+            }
+        } finally {
+            mIsSyncingPinBoxes = false;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Interfaces
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * The pin boxes in which the PinCodeEntry state is rendered.
+     */
+    interface PinBoxes {
+        CharSequence getText(int box);
+
+        void setText(int box, CharSequence text);
+
+        void setFilled(int box, boolean isFilled);
+
+        void setFocusable(int box, boolean isFocusable);
+
+        void requestFocus(int box);
+    }
+}
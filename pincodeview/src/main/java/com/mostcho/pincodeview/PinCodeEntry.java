@@ -0,0 +1,224 @@
+package com.mostcho.pincodeview;
+
+/**
+ * Entry state machine behind the PinCodeView. It owns the entered digits, the attempts counter and
+ * decides when a pin code is completed. It has no Android dependencies so it can be driven
+ * headless, the view only renders its state into the pin boxes.
+ */
+class PinCodeEntry {
+    // ---------------------------------------------------------------------------------------------
+    // Constants
+    // ---------------------------------------------------------------------------------------------
+    static final int PIN_CODE_LENGTH = 4;
+
+    private static final String DEFAULT_PIN_CODE = "0000";
+    private static final int DEFAULT_WRONG_ENTERED_PINCODES_COUNT = 5;
+
+    // ---------------------------------------------------------------------------------------------
+    // Fields
+    // ---------------------------------------------------------------------------------------------
+    private final char[] mDigits = new char[PIN_CODE_LENGTH];
+    private int mLength = 0;
+
+    private String mDefaultPinCode = DEFAULT_PIN_CODE;
+
+    private int mWrongEnteredPinCodesCount = 0;
+    private int mDefaultWrongEnteredPinCodesCount = DEFAULT_WRONG_ENTERED_PINCODES_COUNT;
+
+    private int mPinCodeViewMode = PinCodeView.PinCodeMode.VERIFY_PINCODE;
+
+    private Callback mCallback;
+
+    // ---------------------------------------------------------------------------------------------
+    // Package methods
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Set the receiver of the completed pin codes. Without it a completed pin code is neither
+     * verified nor counted as a wrong attempt, the boxes just stay filled.
+     *
+     * @param callback Receives the result of every completed pin code.
+     */
+    void setCallback(Callback callback) {
+        mCallback = callback;
+    }
+
+    void setPinCodeMode(int pinCodeViewMode) {
+        mPinCodeViewMode = pinCodeViewMode;
+    }
+
+    int getPinCodeMode() {
+        return mPinCodeViewMode;
+    }
+
+    void setDefaultPinCode(String pinCode) {
+        mDefaultPinCode = pinCode;
+    }
+
+    /**
+     * Set the count of retries to enter the correct pin. If it is lowered to or below the already
+     * entered wrong pin codes, the next wrong pin code exhausts the attempts.
+     *
+     * @param count Retries count, must be positive.
+     */
+    void setWrongEnteredPinCodesCount(int count) {
+        mDefaultWrongEnteredPinCodesCount = count;
+        if (mWrongEnteredPinCodesCount >= count) {
+            mWrongEnteredPinCodesCount = count - 1;
+        }
+    }
+
+    int getWrongEnteredPinCodesCount() {
+        return mWrongEnteredPinCodesCount;
+    }
+
+    int getMaxWrongEnteredPinCodesCount() {
+        return mDefaultWrongEnteredPinCodesCount;
+    }
+
+    /**
+     * Append one digit to the entered pin code. Completes the pin code when the last box is filled.
+     *
+     * @param digit Entered character.
+     * @return true if the digit was accepted, false if it is not a digit or all boxes are filled.
+     */
+    boolean enterDigit(char digit) {
+        if (digit < '0' || digit > '9' || mLength == PIN_CODE_LENGTH) {
+            return false;
+        }
+        mDigits[mLength++] = digit;
+        if (mLength == PIN_CODE_LENGTH) {
+            completePinCode();
+        }
+        return true;
+    }
+
+    /**
+     * Append pasted digits to the entered pin code. Stops at the first non digit character or when
+     * the pin code is completed, so one paste can complete at most one pin code.
+     *
+     * @param digits Pasted characters.
+     * @return Count of the accepted digits.
+     */
+    int enterDigits(CharSequence digits) {
+        int accepted = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            boolean completes = mLength == PIN_CODE_LENGTH - 1;
+            if (!enterDigit(digits.charAt(i))) {
+                break;
+            }
+            accepted++;
+            if (completes) {
+                break;
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Remove the last entered digit.
+     *
+     * @return true if a digit was removed, false if all boxes were already empty.
+     */
+    boolean deleteDigit() {
+        if (mLength == 0) {
+            return false;
+        }
+        mDigits[--mLength] = 0;
+        return true;
+    }
+
+    /**
+     * Remove the digit in the given box and all digits after it.
+     *
+     * @param box Index of the pin box.
+     * @return true if a digit was removed, false if the box was already empty.
+     */
+    boolean deleteDigits(int box) {
+        if (box >= mLength) {
+            return false;
+        }
+        while (mLength > box) {
+            mDigits[--mLength] = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Clear the entered digits. PinCodeMode and attempts counter are NOT affected.
+     */
+    void reset() {
+        deleteDigits(0);
+    }
+
+    int getLength() {
+        return mLength;
+    }
+
+    /**
+     * @param box Index of the pin box.
+     * @return Digit shown in the box or 0 if the box is empty.
+     */
+    char getDigit(int box) {
+        return mDigits[box];
+    }
+
+    /**
+     * @return Index of the pin box which should hold the focus.
+     */
+    int getFocusedBox() {
+        return Math.min(mLength, PIN_CODE_LENGTH - 1);
+    }
+
+    String getPinCode() {
+        return new String(mDigits, 0, mLength);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Private methods
+    // ---------------------------------------------------------------------------------------------
+    private void completePinCode() {
+        if (mCallback == null) {
+            return;
+        }
+        String pinCode = getPinCode();
+        switch (mPinCodeViewMode) {
+            case PinCodeView.PinCodeMode.SET_NEW_PINCODE:
+                mCallback.onNewPinCode(pinCode);
+                break;
+
+            case PinCodeView.PinCodeMode.VERIFY_PINCODE:
+                if (mDefaultPinCode.contentEquals(pinCode)) {
+                    mWrongEnteredPinCodesCount = 0;
+                    mCallback.onPinCodeVerified();
+                } else {
+                    mWrongEnteredPinCodesCount++;
+                    if (mWrongEnteredPinCodesCount >= mDefaultWrongEnteredPinCodesCount) {
+                        mWrongEnteredPinCodesCount = 0;
+                        mCallback.onAttemptsExhausted();
+                    } else {
+                        reset();
+                        mCallback.onWrongPinCode(mDefaultWrongEnteredPinCodesCount - mWrongEnteredPinCodesCount);
+                    }
+                }
+                break;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Interfaces
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Result of a completed pin code. Exactly one method is called per completion.
+     */
+    interface Callback {
+        void onNewPinCode(String pinCode);
+
+        void onPinCodeVerified();
+
+        void onWrongPinCode(int entriesLeft);
+
+        void onAttemptsExhausted();
+    }
+}
@@ -18,6 +18,7 @@ import android.util.AttributeSet;
 import android.util.Log;
 import android.util.TypedValue;
 import android.view.Gravity;
+import android.view.KeyEvent;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.EditText;
@@ -43,8 +44,6 @@ public class PinCodeView extends LinearLayout {
     private static final int WARNING_MSG_TEXT_SIZE = 20; //sp
     private static final int WARNING_MSG_MARGIN_DP = 8; //dp
 
-    private static final int DEFAULT_WRONG_ENTERED_PINCODES_COUNT = 5;
-
     public static class PinCodeMode {
         public static final int SET_NEW_PINCODE = 0;
         public static final int VERIFY_PINCODE = 1;
@@ -60,16 +59,13 @@ public class PinCodeView extends LinearLayout {
     private EditText mEtPinBox2;
     private EditText mEtPinBox3;
     private EditText mEtPinBox4;
+    private EditText[] mPinBoxes;
 
     private Drawable mPinBoxEmpty;
     private Drawable mPinBoxFilled;
 
-    private String mDefaultPinCode = "0000";
-
-    private int mWrongEnteredPinCodesCount = 0;
-    private int mDefaultWrongEnteredPinCodesCount = DEFAULT_WRONG_ENTERED_PINCODES_COUNT;
-
-    private int mPinCodeViewMode = PinCodeMode.VERIFY_PINCODE;
+    private final PinCodeEntry mEntry = new PinCodeEntry();
+    private final PinBoxController mPinBoxController = new PinBoxController(mEntry, new EditTextPinBoxes());
 
     private IPinCodeViewListener mListener;
 
@@ -141,6 +137,7 @@ public class PinCodeView extends LinearLayout {
     public void setCompletionListener(Context context) {
         if (context instanceof IPinCodeViewListener) {
             mListener = (IPinCodeViewListener) context;
+            mEntry.setCallback(new PinCodeEntryCallback());
         } else {
             throw new RuntimeException(context.toString() + " must implement " +
                 "IPinCodeViewListener");
@@ -157,7 +154,7 @@ public class PinCodeView extends LinearLayout {
      * @param pinCodeViewMode On of the items from PinCodeView.PinCodeMode.
      */
     public void setPinCodeMode(int pinCodeViewMode) {
-        mPinCodeViewMode = pinCodeViewMode;
+        mEntry.setPinCodeMode(pinCodeViewMode);
     }
 
     /**
@@ -166,7 +163,7 @@ public class PinCodeView extends LinearLayout {
      * @param pinCode
      */
     public void setDefaultPinCode(String pinCode) {
-        mDefaultPinCode = pinCode;
+        mEntry.setDefaultPinCode(pinCode);
     }
 
     /**
@@ -187,10 +184,14 @@ public class PinCodeView extends LinearLayout {
      * passed as false value in the IPinCodeViewListener.onCorrectPinCode(). It should be handled
      * after going to this method.
      *
-     * @param count Retries count.
+     * @param count Retries count. Counts which are not positive are ignored.
      */
     public void setWrongEnteredPinCodesCount(int count) {
-        mDefaultWrongEnteredPinCodesCount = count;
+        if (count <= 0) {
+            Log.w(TAG, "Ignoring wrong entered pin codes count " + count);
+            return;
+        }
+        mEntry.setWrongEnteredPinCodesCount(count);
     }
 
     /**
@@ -198,17 +199,7 @@ public class PinCodeView extends LinearLayout {
      */
     public void resetPinCodeBoxes() {
         Log.d(TAG, "Resetting pin boxes");
-        mEtPinBox1.setText("");
-        mEtPinBox2.setText("");
-        mEtPinBox3.setText("");
-        mEtPinBox4.setText("");
-
-        mEtPinBox1.setFocusableInTouchMode(true);
-        mEtPinBox2.setFocusableInTouchMode(false);
-        mEtPinBox3.setFocusableInTouchMode(false);
-        mEtPinBox4.setFocusableInTouchMode(false);
-
-        mEtPinBox1.requestFocus();
+        mPinBoxController.reset();
     }
 
     /**
@@ -250,235 +241,21 @@ public class PinCodeView extends LinearLayout {
         mLlPinCodeBoxesHolder.addView(mEtPinBox3);
         mLlPinCodeBoxesHolder.addView(mEtPinBox4);
 
-        resetPinCodeBoxes();
-
-        mEtPinBox1.addTextChangedListener(new TextWatcher() {
-            @Override
-            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
-                if (count == 0) {
-                    mEtPinBox1.setSelection(0);
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
-                        mEtPinBox1.setBackground(mPinBoxEmpty);
-                    } else {
-                        mEtPinBox1.setBackgroundDrawable(mPinBoxEmpty);
-                    }
-                } else if (count == 1) {
-                    mEtPinBox1.setSelection(1);
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
-                        mEtPinBox1.setBackground(mPinBoxFilled);
-                    } else {
-                        mEtPinBox1.setBackgroundDrawable(mPinBoxFilled);
-                    }
-                }
-            }
-
-            @Override
-            public void onTextChanged(CharSequence s, int start, int before, int count) {
-                if (count == 1) {
-                    Log.d(TAG, "PBox1 = " + s);
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
-                        mEtPinBox1.setBackground(mPinBoxFilled);
-                    } else {
-                        mEtPinBox1.setBackgroundDrawable(mPinBoxFilled);
-                    }
-                    mEtPinBox2.setFocusableInTouchMode(true);
-                    mEtPinBox2.requestFocus();
-                    mEtPinBox1.setFocusableInTouchMode(false);
-                }
-            }
-
-            @Override
-            public void afterTextChanged(Editable s) {
-                if (s.length() == 0) {
-                    Log.d(TAG, "PBox1 = clear");
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
-                        mEtPinBox1.setBackground(mPinBoxEmpty);
-                    } else {
-                        mEtPinBox1.setBackgroundDrawable(mPinBoxEmpty);
-                    }
-                    mEtPinBox1.setSelection(0);
-                }
-            }
-        });
-        mEtPinBox2.addTextChangedListener(new TextWatcher() {
-            @Override
-            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
-                if (count == 0) {
-                    mEtPinBox2.setSelection(0);
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
-                        mEtPinBox2.setBackground(mPinBoxEmpty);
-                    } else {
-                        mEtPinBox2.setBackgroundDrawable(mPinBoxEmpty);
-                    }
-                } else if (count == 1) {
-                    mEtPinBox2.setSelection(1);
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
-                        mEtPinBox2.setBackground(mPinBoxFilled);
-                    } else {
-                        mEtPinBox2.setBackgroundDrawable(mPinBoxFilled);
-                    }
-                }
-            }
-
-            @Override
-            public void onTextChanged(CharSequence s, int start, int before, int count) {
-                if (count == 1) {
-                    Log.d(TAG, "PBox2 = " + s);
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
-                        mEtPinBox2.setBackground(mPinBoxFilled);
-                    } else {
-                        mEtPinBox2.setBackgroundDrawable(mPinBoxFilled);
-                    }
-                    mEtPinBox3.setFocusableInTouchMode(true);
-                    mEtPinBox3.requestFocus();
-                    mEtPinBox2.setFocusableInTouchMode(false);
-                }
-            }
-
-            @Override
-            public void afterTextChanged(Editable s) {
-                if (s.length() == 0) {
-                    Log.d(TAG, "PBox2 = clear");
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
-                        mEtPinBox2.setBackground(mPinBoxEmpty);
-                    } else {
-                        mEtPinBox2.setBackgroundDrawable(mPinBoxEmpty);
-                    }
-                    mEtPinBox1.setFocusableInTouchMode(true);
-                    mEtPinBox1.requestFocus();
-                    mEtPinBox2.setFocusableInTouchMode(false);
-                }
-            }
-        });
-        mEtPinBox3.addTextChangedListener(new TextWatcher() {
-            @Override
-            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
-                if (count == 0) {
-                    mEtPinBox3.setSelection(0);
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
-                        mEtPinBox3.setBackground(mPinBoxEmpty);
-                    } else {
-                        mEtPinBox3.setBackgroundDrawable(mPinBoxEmpty);
-                    }
-                } else if (count == 1) {
-                    mEtPinBox3.setSelection(1);
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
-                        mEtPinBox3.setBackground(mPinBoxFilled);
-                    } else {
-                        mEtPinBox3.setBackgroundDrawable(mPinBoxFilled);
-                    }
-                }
-            }
-
-            @Override
-            public void onTextChanged(CharSequence s, int start, int before, int count) {
-                if (count == 1) {
-                    Log.d(TAG, "PBox3 = " + s);
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
-                        mEtPinBox3.setBackground(mPinBoxFilled);
-                    } else {
-                        mEtPinBox3.setBackgroundDrawable(mPinBoxFilled);
-                    }
-                    mEtPinBox4.setFocusableInTouchMode(true);
-                    mEtPinBox4.requestFocus();
-                    mEtPinBox3.setFocusableInTouchMode(false);
-                }
-            }
-
-            @Override
-            public void afterTextChanged(Editable s) {
-                if (s.length() == 0) {
-                    Log.d(TAG, "PBox3 = clear");
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
-                        mEtPinBox3.setBackground(mPinBoxEmpty);
-                    } else {
-                        mEtPinBox3.setBackgroundDrawable(mPinBoxEmpty);
-                    }
-                    mEtPinBox2.setFocusableInTouchMode(true);
-                    mEtPinBox2.requestFocus();
-                    mEtPinBox3.setFocusableInTouchMode(false);
-                }
-            }
-        });
-        mEtPinBox4.addTextChangedListener(new TextWatcher() {
-            @Override
-            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
-                if (count == 0) {
-                    mEtPinBox4.setSelection(0);
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
-                        mEtPinBox4.setBackground(mPinBoxEmpty);
-                    } else {
-                        mEtPinBox4.setBackgroundDrawable(mPinBoxEmpty);
-                    }
-                } else if (count == 1) {
-                    mEtPinBox4.setSelection(1);
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
-                        mEtPinBox4.setBackground(mPinBoxFilled);
-                    } else {
-                        mEtPinBox4.setBackgroundDrawable(mPinBoxFilled);
-                    }
-                }
-            }
+        mPinBoxes = new EditText[]{mEtPinBox1, mEtPinBox2, mEtPinBox3, mEtPinBox4};
+        for (int i = 0; i < mPinBoxes.length; i++) {
+            mPinBoxes[i].addTextChangedListener(new PinBoxTextWatcher(i));
+            mPinBoxes[i].setOnKeyListener(new PinBoxKeyListener(i));
+        }
 
-            @Override
-            public void onTextChanged(CharSequence s, int start, int before, int count) {
-                if (count == 1) {
-                    Log.d(TAG, "PBox4 = " + s);
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
-                        mEtPinBox4.setBackground(mPinBoxFilled);
-                    } else {
-                        mEtPinBox4.setBackgroundDrawable(mPinBoxFilled);
-                    }
-                    Log.d(TAG, "Pin Code entered");
-                    mEtPinBox4.setSelection(1);
-                    if (mListener != null) {
-                        switch (mPinCodeViewMode) {
-                            case PinCodeMode.SET_NEW_PINCODE:
-                                Log.d(TAG, "PinCodeMode.SET_NEW_PINCODE = " + getPinCode());
-                                mTvInfoMessage.setTextColor(Color.BLACK);
-                                mTvInfoMessage.setText("Your new Pin Code is " + getPinCode());
-                                mListener.onNewPinCode(getPinCode());
-                                break;
-
-                            case PinCodeMode.VERIFY_PINCODE:
-                                Log.d(TAG, "PinCodeMode.VERIFY_PINCODE");
-                                if (mDefaultPinCode.contentEquals(getPinCode())) {
-                                    mWrongEnteredPinCodesCount = 0;
-                                    mTvInfoMessage.setTextColor(Color.GREEN);
-                                    mTvInfoMessage.setText("Pin Code verified");
-                                    mListener.onCorrectPinCode(true);
-                                } else {
-                                    mWrongEnteredPinCodesCount++;
-                                    if (mDefaultWrongEnteredPinCodesCount == mWrongEnteredPinCodesCount) {
-                                        mWrongEnteredPinCodesCount = 0;
-                                        mListener.onCorrectPinCode(false);
-                                    } else {
-                                        mTvInfoMessage.setTextColor(Color.RED);
-                                        mTvInfoMessage.setText((mDefaultWrongEnteredPinCodesCount - mWrongEnteredPinCodesCount) + " entries left");
-                                        resetPinCodeBoxes();
-                                    }
-                                }
-                                break;
-                        }
-                    }
-                }
-            }
+        resetPinCodeBoxes();
+    }
 
-            @Override
-            public void afterTextChanged(Editable s) {
-                if (s.length() == 0) {
-                    Log.d(TAG, "PBox4 = clear");
-                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
-                        mEtPinBox4.setBackground(mPinBoxEmpty);
-                    } else {
-                        mEtPinBox4.setBackgroundDrawable(mPinBoxEmpty);
-                    }
-                    mEtPinBox3.setFocusableInTouchMode(true);
-                    mEtPinBox3.requestFocus();
-                    mEtPinBox4.setFocusableInTouchMode(false);
-                }
-            }
-        });
+    private void setPinBoxBackground(EditText pinBox, Drawable background) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            pinBox.setBackground(background);
+        } else {
+            pinBox.setBackgroundDrawable(background);
+        }
     }
 
     private EditText createPinBox(EditText et) {
@@ -487,11 +264,7 @@ public class PinCodeView extends LinearLayout {
         int margin = dpToPx(BOX_MARGIN_DP);
         params.setMargins(margin, margin, margin, margin);
         et.setLayoutParams(params);
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
-            et.setBackground(mPinBoxEmpty);
-        } else {
-            et.setBackgroundDrawable(mPinBoxEmpty);
-        }
+        setPinBoxBackground(et, mPinBoxEmpty);
         et.setCursorVisible(BOX_CURSOR_VISIBLE);
         et.setGravity(VERTICAL);
         et.setInputType(InputType.TYPE_CLASS_NUMBER | InputType.TYPE_NUMBER_VARIATION_PASSWORD);
@@ -516,21 +289,6 @@ public class PinCodeView extends LinearLayout {
             .getDisplayMetrics().density);
     }
 
-    private String getPinCode() {
-        String pinCode = "";
-        pinCode += mEtPinBox1.getText()
-            .toString();
-        pinCode += mEtPinBox2.getText()
-            .toString();
-        pinCode += mEtPinBox3.getText()
-            .toString();
-        pinCode += mEtPinBox4.getText()
-            .toString();
-
-        Log.d(TAG, "entered pinCode = " + pinCode);
-        return pinCode;
-    }
-
     private Drawable createEmptyPinBoxBackground() {
         ShapeDrawable rectangle = new ShapeDrawable(new RectShape());
         rectangle.getPaint()
@@ -570,6 +328,125 @@ public class PinCodeView extends LinearLayout {
     // ---------------------------------------------------------------------------------------------
     // Private classes
     // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Passes the text changes of a pin box to the PinBoxController. The box content is then
+     * rewritten from the PinCodeEntry state, so extra characters never stay in the box.
+     */
+    private class PinBoxTextWatcher implements TextWatcher {
+        private final int mBox;
+
+        public PinBoxTextWatcher(int box) {
+            mBox = box;
+        }
+
+        @Override
+        public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+        }
+
+        @Override
+        public void onTextChanged(CharSequence s, int start, int before, int count) {
+            Log.d(TAG, "PBox" + (mBox + 1) + " = " + s);
+            mPinBoxController.onTextChanged(mBox, s, start, before, count);
+        }
+
+        @Override
+        public void afterTextChanged(Editable s) {
+            mPinBoxController.afterTextChanged();
+        }
+    }
+
+    /**
+     * Backspace in an empty pin box does not change its text, so it is passed to the
+     * PinBoxController here in order to remove the digit from the previous box.
+     */
+    private class PinBoxKeyListener implements OnKeyListener {
+        private final int mBox;
+
+        public PinBoxKeyListener(int box) {
+            mBox = box;
+        }
+
+        @Override
+        public boolean onKey(View v, int keyCode, KeyEvent event) {
+            if (keyCode != KeyEvent.KEYCODE_DEL) {
+                return false;
+            }
+            if (event.getAction() == KeyEvent.ACTION_DOWN) {
+                Log.d(TAG, "PBox" + (mBox + 1) + " = delete");
+                mPinBoxController.onDelKey(mBox);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Renders the PinCodeEntry state into the EditTexts of the pin boxes.
+     */
+    private class EditTextPinBoxes implements PinBoxController.PinBoxes {
+        @Override
+        public CharSequence getText(int box) {
+            return mPinBoxes[box].getText();
+        }
+
+        @Override
+        public void setText(int box, CharSequence text) {
+            mPinBoxes[box].setText(text);
+        }
+
+        @Override
+        public void setFilled(int box, boolean isFilled) {
+            setPinBoxBackground(mPinBoxes[box], isFilled ? mPinBoxFilled : mPinBoxEmpty);
+        }
+
+        @Override
+        public void setFocusable(int box, boolean isFocusable) {
+            mPinBoxes[box].setFocusableInTouchMode(isFocusable);
+        }
+
+        @Override
+        public void requestFocus(int box) {
+            EditText pinBox = mPinBoxes[box];
+            pinBox.requestFocus();
+            pinBox.setSelection(pinBox.length());
+        }
+    }
+
+    /**
+     * Shows the result of a completed pin code and passes it to the IPinCodeViewListener. It is set
+     * only together with the listener.
+     */
+    private class PinCodeEntryCallback implements PinCodeEntry.Callback {
+        @Override
+        public void onNewPinCode(String pinCode) {
+            Log.d(TAG, "PinCodeMode.SET_NEW_PINCODE = " + pinCode);
+            mTvInfoMessage.setTextColor(Color.BLACK);
+            mTvInfoMessage.setText("Your new Pin Code is " + pinCode);
+            mListener.onNewPinCode(pinCode);
+        }
+
+        @Override
+        public void onPinCodeVerified() {
+            Log.d(TAG, "PinCodeMode.VERIFY_PINCODE = verified");
+            mTvInfoMessage.setTextColor(Color.GREEN);
+            mTvInfoMessage.setText("Pin Code verified");
+            mListener.onCorrectPinCode(true);
+        }
+
+        @Override
+        public void onWrongPinCode(int entriesLeft) {
+            Log.d(TAG, "PinCodeMode.VERIFY_PINCODE = wrong");
+            mTvInfoMessage.setTextColor(Color.RED);
+            mTvInfoMessage.setText(entriesLeft + " entries left");
+        }
+
+        @Override
+        public void onAttemptsExhausted() {
+            Log.d(TAG, "PinCodeMode.VERIFY_PINCODE = attempts exhausted");
+            mListener.onCorrectPinCode(false);
+        }
+    }
+
     private class AsteriskPasswordTransformationMethod extends PasswordTransformationMethod {
         @Override
         public CharSequence getTransformation(CharSequence source, View view) {
@@ -0,0 +1,574 @@
+package com.mostcho.pincodeview;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Replays keystroke traces against the PinBoxController and PinCodeEntry, the same code which
+ * handles the EditTexts of the PinCodeView, and checks the invariants after every event. The
+ * EditTexts are simulated by SimulatedPinBoxes which fire the text change events and move the
+ * focus the way Android does. It runs headless, see PinCodeTraceSimulatorTest.
+ * <p>
+ * Trace tokens are separated by whitespace, everything after '#' on a line is a comment:
+ * <ul>
+ * <li>0-9 - type a digit into the focused box</li>
+ * <li>D - press backspace in the focused box</li>
+ * <li>P&lt;chars&gt; - paste the chars into the focused box</li>
+ * <li>P&lt;box&gt;:&lt;chars&gt; - paste the chars into the box 1-4, even if it is not focused</li>
+ * <li>X&lt;box&gt; - clear the text of the box 1-4</li>
+ * <li>R - reset the pin boxes</li>
+ * <li>S - switch to PinCodeMode.SET_NEW_PINCODE</li>
+ * <li>V - switch to PinCodeMode.VERIFY_PINCODE</li>
+ * <li>A&lt;count&gt; - set the wrong entered pin codes count</li>
+ * </ul>
+ * Like the example app, the listener switches to VERIFY_PINCODE and resets the boxes from inside
+ * onNewPinCode(), so re-entrant calls are covered as well.
+ */
+public class PinCodeTraceSimulator {
+    // ---------------------------------------------------------------------------------------------
+    // Constants
+    // ---------------------------------------------------------------------------------------------
+    static final String DEFAULT_PIN_CODE = "1234";
+
+    private static final int DEFAULT_WRONG_ENTERED_PINCODES_COUNT = 5;
+    private static final int BOX_MAX_LENGTH = 4;
+    private static final int FOCUSED_BOX = -1;
+
+    static final int NONE = 0;
+    static final int NEW_PIN_CODE = 1;
+    static final int VERIFIED = 2;
+    static final int WRONG = 3;
+    static final int EXHAUSTED = 4;
+
+    // ---------------------------------------------------------------------------------------------
+    // Fields
+    // ---------------------------------------------------------------------------------------------
+    private final PinCodeEntry mEntry;
+    private final SimulatedPinBoxes mPinBoxes;
+    private final PinBoxController mPinBoxController;
+
+    // Expected state, maintained independently of the PinCodeEntry.
+    private final char[] mDigits = new char[PinCodeEntry.PIN_CODE_LENGTH];
+    private int mLength = 0;
+    private int mMode = PinCodeView.PinCodeMode.VERIFY_PINCODE;
+    private int mWrongCount = 0;
+    private int mMaxWrongCount = DEFAULT_WRONG_ENTERED_PINCODES_COUNT;
+    private int mExpectedResult = NONE;
+    private String mExpectedPinCode;
+    private int mExpectedEntriesLeft;
+
+    // Results reported by the PinCodeEntry for the current event.
+    private int mCallbacksCount = 0;
+    private int mResult = NONE;
+    private String mResultPinCode;
+    private int mResultEntriesLeft;
+
+    private long mEventsCount = 0;
+    private long mElapsedNanos = 0;
+    private final long[] mResultsCount = new long[EXHAUSTED + 1];
+
+    // ---------------------------------------------------------------------------------------------
+    // Constructors
+    // ---------------------------------------------------------------------------------------------
+    public PinCodeTraceSimulator() {
+        mEntry = new PinCodeEntry();
+        mEntry.setCallback(new SimulatorCallback());
+        mEntry.setDefaultPinCode(DEFAULT_PIN_CODE);
+        mEntry.setWrongEnteredPinCodesCount(DEFAULT_WRONG_ENTERED_PINCODES_COUNT);
+        mPinBoxes = new SimulatedPinBoxes();
+        mPinBoxController = new PinBoxController(mEntry, mPinBoxes);
+        mPinBoxController.reset();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Public methods
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * Parse recorded trace.
+     *
+     * @param reader Trace source, it is closed after reading.
+     * @return Parsed events.
+     * @throws IllegalArgumentException with the line and the token of the malformed token.
+     */
+    public static List<TraceEvent> parseTrace(Reader reader) throws IOException {
+        List<TraceEvent> events = new ArrayList<TraceEvent>();
+        BufferedReader bufferedReader = new BufferedReader(reader);
+        try {
+            String line;
+            int lineNumber = 0;
+            while ((line = bufferedReader.readLine()) != null) {
+                lineNumber++;
+                int comment = line.indexOf('#');
+                if (comment >= 0) {
+                    line = line.substring(0, comment);
+                }
+                for (String token : line.trim().split("\\s+")) {
+                    if (!token.isEmpty()) {
+                        events.add(TraceEvent.parse(token, lineNumber));
+                    }
+                }
+            }
+        } finally {
+            bufferedReader.close();
+        }
+        return events;
+    }
+
+    /**
+     * Replay parsed trace. Only the events are timed, not the parsing.
+     *
+     * @param events Events returned by parseTrace().
+     */
+    public void replay(List<TraceEvent> events) {
+        long start = System.nanoTime();
+        for (TraceEvent event : events) {
+            try {
+                step(event.op, event.box, event.payload);
+            } catch (IllegalStateException e) {
+                throw new IllegalStateException("line " + event.line + ": " + e.getMessage(), e);
+            }
+        }
+        mElapsedNanos += System.nanoTime() - start;
+    }
+
+    /**
+     * Generate and replay random trace. The same seed always produces the same trace. The timing
+     * includes the generation of the events.
+     *
+     * @param events Count of events to generate.
+     * @param seed   Random seed.
+     */
+    public void runRandom(long events, long seed) {
+        Random random = new Random(seed);
+        StringBuilder payload = new StringBuilder();
+        long start = System.nanoTime();
+        for (long i = 0; i < events; i++) {
+            payload.setLength(0);
+            int box = FOCUSED_BOX;
+            int roll = random.nextInt(100);
+            char op;
+            if (roll < 55) {
+                op = (char) ('0' + random.nextInt(10));
+            } else if (roll < 75) {
+                op = 'D';
+            } else if (roll < 84) {
+                op = 'P';
+                if (roll >= 81) {
+                    box = random.nextInt(PinCodeEntry.PIN_CODE_LENGTH);
+                }
+                if (random.nextBoolean()) {
+                    payload.append(DEFAULT_PIN_CODE);
+                } else {
+                    int length = random.nextInt(PinCodeEntry.PIN_CODE_LENGTH + 3);
+                    for (int j = 0; j < length; j++) {
+                        payload.append(random.nextInt(20) == 0 ? 'x' : (char) ('0' + random.nextInt(10)));
+                    }
+                }
+            } else if (roll < 88) {
+                op = 'X';
+                box = random.nextInt(PinCodeEntry.PIN_CODE_LENGTH);
+            } else if (roll < 92) {
+                op = 'R';
+            } else if (roll < 97) {
+                op = random.nextBoolean() ? 'S' : 'V';
+            } else {
+                op = 'A';
+                payload.append(1 + random.nextInt(DEFAULT_WRONG_ENTERED_PINCODES_COUNT));
+            }
+            try {
+                step(op, box, payload);
+            } catch (IllegalStateException e) {
+                throw new IllegalStateException("seed " + seed + ": " + e.getMessage(), e);
+            }
+        }
+        mElapsedNanos += System.nanoTime() - start;
+    }
+
+    public long getEventsCount() {
+        return mEventsCount;
+    }
+
+    /**
+     * @param result One of NEW_PIN_CODE, VERIFIED, WRONG and EXHAUSTED.
+     * @return Count of the completed pin codes with this result.
+     */
+    public long getResultsCount(int result) {
+        return mResultsCount[result];
+    }
+
+    public void printReport(String name) {
+        double seconds = mElapsedNanos / 1e9;
+        System.out.println(name);
+        System.out.println("  events:         " + mEventsCount);
+        System.out.println("  new pin codes:  " + mResultsCount[NEW_PIN_CODE]);
+        System.out.println("  verified:       " + mResultsCount[VERIFIED]);
+        System.out.println("  wrong:          " + mResultsCount[WRONG]);
+        System.out.println("  exhausted:      " + mResultsCount[EXHAUSTED]);
+        System.out.println("  elapsed:        " + String.format("%.3f s", seconds));
+        if (mElapsedNanos > 0) {
+            System.out.println("  throughput:     " + String.format("%.0f events/s", mEventsCount / seconds));
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Private methods
+    // ---------------------------------------------------------------------------------------------
+    private void step(char op, int box, CharSequence payload) {
+        mEventsCount++;
+        mCallbacksCount = 0;
+        mResult = NONE;
+        mExpectedResult = NONE;
+        mPinBoxes.mIsFocusLost = false;
+
+        int focusedBox = Math.min(mLength, PinCodeEntry.PIN_CODE_LENGTH - 1);
+        if (op >= '0' && op <= '9') {
+            expectDigit(op);
+            mPinBoxes.type(mPinBoxes.mFocus, String.valueOf(op));
+        } else {
+            switch (op) {
+                case 'D':
+                    if (mLength > 0) {
+                        mDigits[--mLength] = 0;
+                    }
+                    mPinBoxes.pressDel(mPinBoxes.mFocus);
+                    break;
+
+                case 'P':
+                    int targetBox = box == FOCUSED_BOX ? focusedBox : box;
+                    // The length filter of the box drops what does not fit.
+                    int fits = Math.min(payload.length(), BOX_MAX_LENGTH - (targetBox < mLength ? 1 : 0));
+                    for (int i = 0; i < fits; i++) {
+                        if (!expectDigit(payload.charAt(i)) || mExpectedResult != NONE) {
+                            break;
+                        }
+                    }
+                    mPinBoxes.type(box == FOCUSED_BOX ? mPinBoxes.mFocus : box, payload);
+                    break;
+
+                case 'X':
+                    if (box < mLength) {
+                        mLength = box;
+                    }
+                    mPinBoxes.clear(box);
+                    break;
+
+                case 'R':
+                    mLength = 0;
+                    mPinBoxController.reset();
+                    break;
+
+                case 'S':
+                    mMode = PinCodeView.PinCodeMode.SET_NEW_PINCODE;
+                    mEntry.setPinCodeMode(mMode);
+                    break;
+
+                case 'V':
+                    mMode = PinCodeView.PinCodeMode.VERIFY_PINCODE;
+                    mEntry.setPinCodeMode(mMode);
+                    break;
+
+                case 'A':
+                    mMaxWrongCount = Integer.parseInt(payload.toString());
+                    if (mWrongCount >= mMaxWrongCount) {
+                        mWrongCount = mMaxWrongCount - 1;
+                    }
+                    mEntry.setWrongEnteredPinCodesCount(mMaxWrongCount);
+                    break;
+
+                default:
+                    throw new IllegalArgumentException("Unknown trace op " + op);
+            }
+        }
+        checkInvariants(op, box, payload);
+    }
+
+    /**
+     * Update the expected state with one entered character.
+     *
+     * @return true if the character is expected to be accepted.
+     */
+    private boolean expectDigit(char digit) {
+        if (digit < '0' || digit > '9' || mLength == PinCodeEntry.PIN_CODE_LENGTH) {
+            return false;
+        }
+        mDigits[mLength++] = digit;
+        if (mLength < PinCodeEntry.PIN_CODE_LENGTH) {
+            return true;
+        }
+
+        mExpectedPinCode = new String(mDigits);
+        if (mMode == PinCodeView.PinCodeMode.SET_NEW_PINCODE) {
+            mExpectedResult = NEW_PIN_CODE;
+            // The listener switches the mode and resets the boxes, see SimulatorCallback.
+            mMode = PinCodeView.PinCodeMode.VERIFY_PINCODE;
+            mLength = 0;
+        } else if (DEFAULT_PIN_CODE.equals(mExpectedPinCode)) {
+            mExpectedResult = VERIFIED;
+            mWrongCount = 0;
+        } else if (++mWrongCount >= mMaxWrongCount) {
+            mExpectedResult = EXHAUSTED;
+            mWrongCount = 0;
+        } else {
+            mExpectedResult = WRONG;
+            mExpectedEntriesLeft = mMaxWrongCount - mWrongCount;
+            mLength = 0;
+        }
+        return true;
+    }
+
+    private void checkInvariants(char op, int box, CharSequence payload) {
+        // The first empty box, or the last one when all of them are filled.
+        int focusedBox = mLength < PinCodeEntry.PIN_CODE_LENGTH ? mLength : PinCodeEntry.PIN_CODE_LENGTH - 1;
+        for (int i = 0; i < PinCodeEntry.PIN_CODE_LENGTH; i++) {
+            String expected = i < mLength ? String.valueOf(mDigits[i]) : "";
+            if (!expected.equals(mPinBoxes.mTexts[i])) {
+                fail(op, box, payload, "box " + (i + 1) + " shows \"" + mPinBoxes.mTexts[i] + "\", expected \""
+                    + expected + "\"");
+            }
+            if (mPinBoxes.mIsFilled[i] != i < mLength) {
+                fail(op, box, payload, "box " + (i + 1) + " background filled " + mPinBoxes.mIsFilled[i]);
+            }
+            if (mPinBoxes.mIsFocusable[i] != (i == focusedBox)) {
+                fail(op, box, payload, "box " + (i + 1) + " focusable " + mPinBoxes.mIsFocusable[i]
+                    + ", expected only box " + (focusedBox + 1));
+            }
+        }
+        if (mPinBoxes.mIsFocusLost) {
+            fail(op, box, payload, "focus was cleared while moving it to box " + (focusedBox + 1));
+        }
+        if (mPinBoxes.mFocus != focusedBox) {
+            fail(op, box, payload, "focus on box " + (mPinBoxes.mFocus + 1) + ", expected " + (focusedBox + 1));
+        }
+        if (!mEntry.getPinCode().equals(new String(mDigits, 0, mLength))) {
+            fail(op, box, payload, "entered pin code " + mEntry.getPinCode());
+        }
+        if (mEntry.getPinCodeMode() != mMode) {
+            fail(op, box, payload, "mode " + mEntry.getPinCodeMode() + ", expected " + mMode);
+        }
+        int wrongCount = mEntry.getWrongEnteredPinCodesCount();
+        if (wrongCount != mWrongCount || wrongCount < 0 || wrongCount >= mEntry.getMaxWrongEnteredPinCodesCount()) {
+            fail(op, box, payload, "wrong entered pin codes count " + wrongCount + ", expected " + mWrongCount
+                + " of " + mEntry.getMaxWrongEnteredPinCodesCount());
+        }
+        int expectedCallbacksCount = mExpectedResult == NONE ? 0 : 1;
+        if (mCallbacksCount != expectedCallbacksCount) {
+            fail(op, box, payload, mCallbacksCount + " callbacks, expected " + expectedCallbacksCount);
+        }
+        if (mResult != mExpectedResult) {
+            fail(op, box, payload, "result " + mResult + ", expected " + mExpectedResult);
+        }
+        if (mResult == NEW_PIN_CODE && !mExpectedPinCode.equals(mResultPinCode)) {
+            fail(op, box, payload, "new pin code " + mResultPinCode + ", expected " + mExpectedPinCode);
+        }
+        if (mResult == WRONG && mResultEntriesLeft != mExpectedEntriesLeft) {
+            fail(op, box, payload, mResultEntriesLeft + " entries left, expected " + mExpectedEntriesLeft);
+        }
+        mResultsCount[mResult]++;
+    }
+
+    private void fail(char op, int box, CharSequence payload, String message) {
+        throw new IllegalStateException("event " + mEventsCount + " (" + TraceEvent.format(op, box, payload) + "): "
+            + message);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Classes
+    // ---------------------------------------------------------------------------------------------
+
+    /**
+     * One parsed trace token.
+     */
+    public static class TraceEvent {
+        final char op;
+        final int box;
+        final String payload;
+        final int line;
+
+        private TraceEvent(char op, int box, String payload, int line) {
+            this.op = op;
+            this.box = box;
+            this.payload = payload;
+            this.line = line;
+        }
+
+        static TraceEvent parse(String token, int line) {
+            char op = token.charAt(0);
+            String payload = token.substring(1);
+            switch (op) {
+                case 'D':
+                case 'R':
+                case 'S':
+                case 'V':
+                    if (!payload.isEmpty()) {
+                        throw parseError(token, line, "unexpected characters after " + op);
+                    }
+                    return new TraceEvent(op, FOCUSED_BOX, payload, line);
+
+                case 'P':
+                    if (payload.length() >= 2 && payload.charAt(1) == ':') {
+                        return new TraceEvent(op, parseBox(token, line, payload.charAt(0)), payload.substring(2), line);
+                    }
+                    return new TraceEvent(op, FOCUSED_BOX, payload, line);
+
+                case 'X':
+                    if (payload.length() != 1) {
+                        throw parseError(token, line, "expected box 1-" + PinCodeEntry.PIN_CODE_LENGTH);
+                    }
+                    return new TraceEvent(op, parseBox(token, line, payload.charAt(0)), "", line);
+
+                case 'A':
+                    int count;
+                    try {
+                        count = Integer.parseInt(payload);
+                    } catch (NumberFormatException e) {
+                        throw parseError(token, line, "count is not a number");
+                    }
+                    if (count <= 0) {
+                        throw parseError(token, line, "count must be positive");
+                    }
+                    return new TraceEvent(op, FOCUSED_BOX, payload, line);
+
+                default:
+                    if (op >= '0' && op <= '9' && payload.isEmpty()) {
+                        return new TraceEvent(op, FOCUSED_BOX, payload, line);
+                    }
+                    throw parseError(token, line, "unknown token");
+            }
+        }
+
+        static String format(char op, int box, CharSequence payload) {
+            if (box == FOCUSED_BOX) {
+                return op + payload.toString();
+            }
+            return op + String.valueOf(box + 1) + (op == 'P' ? ":" + payload : "");
+        }
+
+        private static int parseBox(String token, int line, char box) {
+            if (box < '1' || box > '0' + PinCodeEntry.PIN_CODE_LENGTH) {
+                throw parseError(token, line, "expected box 1-" + PinCodeEntry.PIN_CODE_LENGTH);
+            }
+            return box - '1';
+        }
+
+        private static IllegalArgumentException parseError(String token, int line, String message) {
+            return new IllegalArgumentException("line " + line + " (" + token + "): " + message);
+        }
+    }
+
+    /**
+     * Simulates the EditTexts of the pin boxes: length filter of 4 characters, text change events
+     * for every change, focus only on focusable boxes and focus cleared when the focused box stops
+     * being focusable.
+     */
+    private class SimulatedPinBoxes implements PinBoxController.PinBoxes {
+        private final String[] mTexts = new String[PinCodeEntry.PIN_CODE_LENGTH];
+        private final boolean[] mIsFilled = new boolean[PinCodeEntry.PIN_CODE_LENGTH];
+        private final boolean[] mIsFocusable = new boolean[PinCodeEntry.PIN_CODE_LENGTH];
+        private int mFocus = FOCUSED_BOX;
+        private boolean mIsFocusLost = false;
+
+        SimulatedPinBoxes() {
+            for (int i = 0; i < mTexts.length; i++) {
+                mTexts[i] = "";
+            }
+        }
+
+        /**
+         * Insert text at the end of the box, as typing or pasting does. Nothing happens without a
+         * focused box.
+         */
+        void type(int box, CharSequence text) {
+            if (box == FOCUSED_BOX) {
+                return;
+            }
+            String oldText = mTexts[box];
+            int count = Math.min(text.length(), BOX_MAX_LENGTH - oldText.length());
+            if (count <= 0) {
+                return;
+            }
+            mTexts[box] = oldText + text.subSequence(0, count);
+            mPinBoxController.onTextChanged(box, mTexts[box], oldText.length(), 0, count);
+            mPinBoxController.afterTextChanged();
+        }
+
+        void clear(int box) {
+            setText(box, "");
+        }
+
+        void pressDel(int box) {
+            if (box != FOCUSED_BOX) {
+                mPinBoxController.onDelKey(box);
+            }
+        }
+
+        @Override
+        public CharSequence getText(int box) {
+            return mTexts[box];
+        }
+
+        @Override
+        public void setText(int box, CharSequence text) {
+            String oldText = mTexts[box];
+            mTexts[box] = text.toString();
+            mPinBoxController.onTextChanged(box, mTexts[box], 0, oldText.length(), text.length());
+            mPinBoxController.afterTextChanged();
+        }
+
+        @Override
+        public void setFilled(int box, boolean isFilled) {
+            mIsFilled[box] = isFilled;
+        }
+
+        @Override
+        public void setFocusable(int box, boolean isFocusable) {
+            mIsFocusable[box] = isFocusable;
+            if (!isFocusable && mFocus == box) {
+                mFocus = FOCUSED_BOX;
+                mIsFocusLost = true;
+            }
+        }
+
+        @Override
+        public void requestFocus(int box) {
+            if (mIsFocusable[box]) {
+                mFocus = box;
+            }
+        }
+    }
+
+    private class SimulatorCallback implements PinCodeEntry.Callback {
+        @Override
+        public void onNewPinCode(String pinCode) {
+            onResult(NEW_PIN_CODE);
+            mResultPinCode = pinCode;
+            mEntry.setPinCodeMode(PinCodeView.PinCodeMode.VERIFY_PINCODE);
+            mPinBoxController.reset();
+        }
+
+        @Override
+        public void onPinCodeVerified() {
+            onResult(VERIFIED);
+        }
+
+        @Override
+        public void onWrongPinCode(int entriesLeft) {
+            onResult(WRONG);
+            mResultEntriesLeft = entriesLeft;
+        }
+
+        @Override
+        public void onAttemptsExhausted() {
+            onResult(EXHAUSTED);
+        }
+
+        private void onResult(int result) {
+            mCallbacksCount++;
+            mResult = result;
+        }
+    }
+}
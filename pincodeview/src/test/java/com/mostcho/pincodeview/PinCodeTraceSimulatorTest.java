@@ -0,0 +1,89 @@
+package com.mostcho.pincodeview;
+
+import org.junit.Test;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeNotNull;
+
+/**
+ * Soak test of the pin entry. The random traces are sized by system properties, so CI can raise
+ * them to millions of events:
+ * <pre>
+ *   ./gradlew :pincodeview:test -Dpincode.soak.events=5000000 -Dpincode.soak.seeds=1,2,3
+ * </pre>
+ * An extra recorded trace can be replayed with -Dpincode.soak.trace=&lt;file&gt;.
+ */
+public class PinCodeTraceSimulatorTest {
+    private static final String EVENTS_PROPERTY = "pincode.soak.events";
+    private static final String SEEDS_PROPERTY = "pincode.soak.seeds";
+    private static final String TRACE_PROPERTY = "pincode.soak.trace";
+
+    private static final long DEFAULT_EVENTS_COUNT = 200000;
+    private static final String DEFAULT_SEEDS = "0,1,42";
+    // Shorter random traces may legitimately never verify or exhaust a pin code.
+    private static final long MIN_EVENTS_COUNT_FOR_RESULTS = 100000;
+
+    @Test
+    public void randomTraces() {
+        long events = Long.parseLong(System.getProperty(EVENTS_PROPERTY, String.valueOf(DEFAULT_EVENTS_COUNT)));
+        for (String seed : System.getProperty(SEEDS_PROPERTY, DEFAULT_SEEDS).split(",")) {
+            PinCodeTraceSimulator simulator = new PinCodeTraceSimulator();
+            simulator.runRandom(events, Long.parseLong(seed.trim()));
+            simulator.printReport("random trace, seed " + seed.trim());
+
+            assertEquals(events, simulator.getEventsCount());
+            if (events >= MIN_EVENTS_COUNT_FOR_RESULTS) {
+                assertTrue(simulator.getResultsCount(PinCodeTraceSimulator.VERIFIED) > 0);
+                assertTrue(simulator.getResultsCount(PinCodeTraceSimulator.EXHAUSTED) > 0);
+            }
+        }
+    }
+
+    @Test
+    public void recordedTrace() throws IOException {
+        List<PinCodeTraceSimulator.TraceEvent> events = PinCodeTraceSimulator.parseTrace(
+            new InputStreamReader(getClass().getResourceAsStream("keystroke_trace.txt"), "UTF-8"));
+        PinCodeTraceSimulator simulator = new PinCodeTraceSimulator();
+        simulator.replay(events);
+        simulator.printReport("keystroke_trace.txt");
+
+        assertEquals(1, simulator.getResultsCount(PinCodeTraceSimulator.NEW_PIN_CODE));
+        assertEquals(8, simulator.getResultsCount(PinCodeTraceSimulator.VERIFIED));
+        assertEquals(4, simulator.getResultsCount(PinCodeTraceSimulator.WRONG));
+        assertEquals(1, simulator.getResultsCount(PinCodeTraceSimulator.EXHAUSTED));
+    }
+
+    @Test
+    public void recordedTraceFromProperty() throws IOException {
+        String path = System.getProperty(TRACE_PROPERTY);
+        assumeNotNull(path);
+        PinCodeTraceSimulator simulator = new PinCodeTraceSimulator();
+        simulator.replay(PinCodeTraceSimulator.parseTrace(new InputStreamReader(new FileInputStream(path), "UTF-8")));
+        simulator.printReport(path);
+    }
+
+    @Test
+    public void malformedTraceReportsLineAndToken() throws IOException {
+        assertParseError("1 2\nAx", "line 2 (Ax): count is not a number");
+        assertParseError("A0", "line 1 (A0): count must be positive");
+        assertParseError("# comment\n\nP5:1", "line 3 (P5:1): expected box 1-4");
+        assertParseError("12", "line 1 (12): unknown token");
+    }
+
+    private static void assertParseError(String trace, String message) throws IOException {
+        try {
+            PinCodeTraceSimulator.parseTrace(new StringReader(trace));
+            fail("Expected parse error " + message);
+        } catch (IllegalArgumentException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+}